@@ -0,0 +1,148 @@
+package mdudzisz.starcounter.admission;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead limiting number of concurrent requests to Github, whose limit adapts to observed latency
+ * in AIMD fashion: each fast successful call raises the limit additively (by 1/limit, so about one
+ * per full window), each slow or failed call lowers it multiplicatively. Requests over the limit are
+ * rejected immediately instead of waiting for a free thread.
+ * Latency of a request making several Github calls should be recorded per call with
+ * {@link Permit#recordCall(long)}, so that it reflects Github speed rather than number of calls.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    /**
+     * @param initialLimit Concurrency limit at startup.
+     * @param minLimit Lower bound for concurrency limit.
+     * @param maxLimit Upper bound for concurrency limit.
+     * @param latencyThresholdMillis Github calls slower than this are treated as sign of overload.
+     * @param backoffRatio Factor from range (0, 1) the limit is multiplied by on overload.
+     * @param retryAfterSeconds Time clients are advised to wait after being rejected.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis,
+                                      double backoffRatio, int retryAfterSeconds) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max.");
+        if (backoffRatio <= 0 || backoffRatio >= 1)
+            throw new IllegalArgumentException("Backoff ratio must be in range (0, 1).");
+
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Tries to admit one request. Never blocks.
+     * @return Permit which must be finished with one of its methods, or empty when over capacity.
+     */
+    public Optional<Permit> tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit())
+                return Optional.empty();
+            if (inFlight.compareAndSet(current, current + 1))
+                return Optional.of(new Permit(System.nanoTime()));
+        }
+    }
+
+    /**
+     * @return Current concurrency limit.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return Number of currently admitted requests.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return Time in seconds rejected clients are advised to wait before retrying.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    synchronized void onSample(long latencyNanos, boolean dropped) {
+        if (dropped || latencyNanos > latencyThresholdNanos)
+            limit = Math.max(minLimit, limit * backoffRatio);
+        else
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+    }
+
+    /**
+     * Admission of a single request. Finishing it more than once has no effect.
+     */
+    public class Permit {
+
+        private final long startNanos;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile boolean callsRecorded;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Records latency of single Github call made within this request, letting it adjust the limit.
+         * @param latencyNanos Duration of the call in nanoseconds.
+         */
+        public void recordCall(long latencyNanos) {
+            if (finished.get())
+                return;
+
+            callsRecorded = true;
+            onSample(latencyNanos, false);
+        }
+
+        /**
+         * Finishes successful request, letting its latency adjust the limit unless latencies
+         * of its calls were already recorded.
+         */
+        public void release() {
+            finish(!callsRecorded, false);
+        }
+
+        /**
+         * Finishes call which failed because of upstream overload or error, lowering the limit.
+         */
+        public void drop() {
+            finish(true, true);
+        }
+
+        /**
+         * Finishes call whose outcome says nothing about upstream capacity, e.g. unknown user.
+         */
+        public void ignore() {
+            finish(false, false);
+        }
+
+        private void finish(boolean sample, boolean dropped) {
+            if (!finished.compareAndSet(false, true))
+                return;
+
+            inFlight.decrementAndGet();
+            if (sample)
+                onSample(System.nanoTime() - startNanos, dropped);
+        }
+    }
+}
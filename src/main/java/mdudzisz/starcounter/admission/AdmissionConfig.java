@@ -0,0 +1,37 @@
+package mdudzisz.starcounter.admission;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Separate bulkheads for the two endpoints, so that expensive multi-page star counting
+ * cannot starve single-page listing. Limits can be tuned in application.properties.
+ */
+@Configuration
+public class AdmissionConfig {
+
+    @Bean
+    public AdaptiveConcurrencyLimiter listLimiter(
+            @Value("${starcounter.admission.list.initial-limit:20}") int initialLimit,
+            @Value("${starcounter.admission.list.min-limit:2}") int minLimit,
+            @Value("${starcounter.admission.list.max-limit:100}") int maxLimit,
+            @Value("${starcounter.admission.list.latency-threshold-ms:1000}") long latencyThresholdMillis,
+            @Value("${starcounter.admission.list.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${starcounter.admission.list.retry-after-seconds:1}") int retryAfterSeconds) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyThresholdMillis,
+                backoffRatio, retryAfterSeconds);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter countLimiter(
+            @Value("${starcounter.admission.count.initial-limit:5}") int initialLimit,
+            @Value("${starcounter.admission.count.min-limit:1}") int minLimit,
+            @Value("${starcounter.admission.count.max-limit:30}") int maxLimit,
+            @Value("${starcounter.admission.count.latency-threshold-ms:1000}") long latencyThresholdMillis,
+            @Value("${starcounter.admission.count.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${starcounter.admission.count.retry-after-seconds:5}") int retryAfterSeconds) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyThresholdMillis,
+                backoffRatio, retryAfterSeconds);
+    }
+}
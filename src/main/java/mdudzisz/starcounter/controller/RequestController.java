@@ -3,9 +3,11 @@ package mdudzisz.starcounter.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import mdudzisz.starcounter.admission.AdaptiveConcurrencyLimiter;
 import mdudzisz.starcounter.service.GithubConnector;
 import mdudzisz.starcounter.model.GithubPageableRequestResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.hateoas.Link;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -26,6 +28,9 @@ import java.util.stream.Collectors;
 /**
  * Request controller of application. Exposes two GET endpoints:
  * <base url>/list/{username}?{params} and <base url>/count/{username}.
+ * Requests which need to reach Github are admitted by separate per-endpoint limiters. Recently cached answers
+ * are served without admission; when over capacity, outdated cached answers are served if kept, otherwise
+ * 503 with Retry-After header is returned.
  */
 @Controller
 @RequestMapping("")
@@ -34,15 +39,25 @@ public class RequestController {
     final static String listMapping = "/list";
     final static String countMapping = "/count";
 
+    private final static String rateLimitRemainingHeader = "X-RateLimit-Remaining";
+
     @Autowired
     private GithubConnector webConnector;
 
+    @Autowired
+    @Qualifier("listLimiter")
+    private AdaptiveConcurrencyLimiter listLimiter;
+
+    @Autowired
+    @Qualifier("countLimiter")
+    private AdaptiveConcurrencyLimiter countLimiter;
+
     /**
      * Lists user repositories as name - star count pairs.
      * @param username Taken from request path Github user name.
      * @param queryMap Map of allowed query parameters with their values as String.
      * @return One page of user repositories data (name and star count) and navigating url in response's
-     * HTTP headers for next pages.
+     * HTTP headers for next pages, or 503 status when over capacity.
      */
     @GetMapping(value = listMapping + "/{username}", produces = {"application/JSON"})
     public ResponseEntity<String> listUserRepos(
@@ -54,7 +69,24 @@ public class RequestController {
         try {
             validateQuery(queryMap);
 
-            GithubPageableRequestResult result = webConnector.getReposNamesAndStars(username, queryMap);
+            Optional<GithubPageableRequestResult> cachedResult =
+                    webConnector.getCachedReposNamesAndStars(username, queryMap);
+
+            GithubPageableRequestResult result;
+            if (cachedResult.isPresent()) {
+                result = cachedResult.get();
+            } else {
+                Optional<AdaptiveConcurrencyLimiter.Permit> permit = listLimiter.tryAcquire();
+                if (permit.isPresent()) {
+                    result = callGithub(permit.get(), () -> webConnector.getReposNamesAndStars(username, queryMap));
+                } else {
+                    Optional<GithubPageableRequestResult> staleResult =
+                            webConnector.getStaleReposNamesAndStars(username, queryMap);
+                    if (staleResult.isEmpty())
+                        return prepareOverCapacityResponse(listLimiter);
+                    result = staleResult.get();
+                }
+            }
 
             String jsonBody = new ObjectMapper().writeValueAsString(result.getReposInfosOnPage());
 
@@ -73,14 +105,32 @@ public class RequestController {
     /**
      * Counts sum of user's stars in all repositories.
      * @param username Taken from request path Github user name.
-     * @return User name and user stars count as JSON object.
+     * @return User name and user stars count as JSON object, or 503 status when over capacity.
      */
     @GetMapping(value = countMapping + "/{username}", produces = {"application/JSON"})
     @ResponseBody
     public ResponseEntity<String> countUserStars(@PathVariable("username") String username) {
 
         try {
-            int starCount = webConnector.getUserStarCount(username);
+            Optional<Integer> cachedStarCount = webConnector.getCachedUserStarCount(username);
+
+            int starCount;
+            if (cachedStarCount.isPresent()) {
+                starCount = cachedStarCount.get();
+            } else {
+                Optional<AdaptiveConcurrencyLimiter.Permit> permit = countLimiter.tryAcquire();
+                if (permit.isPresent()) {
+                    // one latency sample per Github page, as request time grows with number of user's repositories
+                    AdaptiveConcurrencyLimiter.Permit countPermit = permit.get();
+                    starCount = callGithub(countPermit,
+                            () -> webConnector.getUserStarCount(username, countPermit::recordCall));
+                } else {
+                    Optional<Integer> staleStarCount = webConnector.getStaleUserStarCount(username);
+                    if (staleStarCount.isEmpty())
+                        return prepareOverCapacityResponse(countLimiter);
+                    starCount = staleStarCount.get();
+                }
+            }
 
             String responseBody = prepareCountResponseBody(username, starCount);
 
@@ -93,6 +143,42 @@ public class RequestController {
         }
     }
 
+    private <T> T callGithub(AdaptiveConcurrencyLimiter.Permit permit, GithubCall<T> call)
+            throws JsonProcessingException {
+        try {
+            T result = call.execute();
+            permit.release();
+            return result;
+        } catch (HttpClientErrorException e) {
+            // other client errors (e.g. unknown user) say nothing about Github capacity
+            if (isGithubRateLimited(e))
+                permit.drop();
+            else
+                permit.ignore();
+            throw e;
+        } catch (JsonProcessingException | RuntimeException e) {
+            permit.drop();
+            throw e;
+        } finally {
+            permit.ignore(); // no effect if already finished above
+        }
+    }
+
+    private boolean isGithubRateLimited(HttpClientErrorException e) {
+        if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS)
+            return true;
+
+        HttpHeaders headers = e.getResponseHeaders();
+        return e.getStatusCode() == HttpStatus.FORBIDDEN && headers != null
+                && "0".equals(headers.getFirst(rateLimitRemainingHeader));
+    }
+
+    private ResponseEntity<String> prepareOverCapacityResponse(AdaptiveConcurrencyLimiter limiter) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(limiter.getRetryAfterSeconds()));
+        return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     private String prepareCountResponseBody(String username, int starCount) throws JsonProcessingException {
         ObjectMapper mapper = new ObjectMapper();
         ObjectNode bodyObject = mapper.createObjectNode();
@@ -129,4 +215,9 @@ public class RequestController {
         if (wrongOptional.isPresent())
             throw new HttpClientErrorException(HttpStatus.FORBIDDEN, "Unsupported query params.");
     }
+
+    @FunctionalInterface
+    private interface GithubCall<T> {
+        T execute() throws JsonProcessingException;
+    }
 }
@@ -0,0 +1,148 @@
+package mdudzisz.starcounter.model;
+
+import org.springframework.hateoas.Link;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
+
+/**
+ * Compact, read-only representation of one cached page of user repositories listing. Instead of keeping one
+ * {@link mdudzisz.starcounter.model.GithubRepoModel} object (and its name String) per repository,
+ * all names are stored one after another as UTF-8 bytes in a single arena array and star counts
+ * in a primitive array. Page links are kept as a single Link header string instead of {@link Link} objects.
+ * Use {@link #toResult()} to get a page which serializes to the same JSON as the one it was created from.
+ */
+public final class CompactRepoListing {
+
+    /**
+     * Names of all repositories as UTF-8 bytes, one after another.
+     */
+    private final byte[] nameArena;
+    /**
+     * Start of i-th name in arena; has one more entry than there are repositories marking end of last name.
+     */
+    private final int[] nameOffsets;
+    /**
+     * Star count of i-th repository.
+     */
+    private final int[] stars;
+    /**
+     * Urls navigating over next possible Github queries, formatted as HTTP Link header.
+     */
+    private final String linkHeader;
+
+    private CompactRepoListing(byte[] nameArena, int[] nameOffsets, int[] stars, String linkHeader) {
+        this.nameArena = nameArena;
+        this.nameOffsets = nameOffsets;
+        this.stars = stars;
+        this.linkHeader = linkHeader;
+    }
+
+    /**
+     * Packs page of repositories into compact listing.
+     * @param page Page to pack. Every repository must have a name.
+     * @return Compact listing with same repositories in same order and same page links.
+     */
+    public static CompactRepoListing of(GithubPageableRequestResult page) {
+        List<GithubRepoModel> repos = page.getReposInfosOnPage();
+        final int size = repos.size();
+        byte[][] encodedNames = new byte[size][];
+        int[] nameOffsets = new int[size + 1];
+        int[] stars = new int[size];
+
+        // iterating instead of indexing, as given list may be a LinkedList
+        Iterator<GithubRepoModel> iterator = repos.iterator();
+        int arenaSize = 0;
+        for (int i = 0; i < size; i++) {
+            GithubRepoModel repo = iterator.next();
+            encodedNames[i] = Objects.requireNonNull(repo.getName(), "Repository name must not be null.")
+                    .getBytes(StandardCharsets.UTF_8);
+            stars[i] = repo.getStars();
+            nameOffsets[i] = arenaSize;
+            arenaSize += encodedNames[i].length;
+        }
+        nameOffsets[size] = arenaSize;
+
+        byte[] nameArena = new byte[arenaSize];
+        for (int i = 0; i < size; i++)
+            System.arraycopy(encodedNames[i], 0, nameArena, nameOffsets[i], encodedNames[i].length);
+
+        String linkHeader = page.getPageLinks().stream().map(Link::toString).collect(Collectors.joining(","));
+
+        return new CompactRepoListing(nameArena, nameOffsets, stars, linkHeader);
+    }
+
+    /**
+     * @return Number of repositories in listing.
+     */
+    public int size() {
+        return stars.length;
+    }
+
+    /**
+     * @param index Position of repository in listing.
+     * @return Name of repository decoded from names arena.
+     */
+    public String getName(int index) {
+        Objects.checkIndex(index, size());
+        final int start = nameOffsets[index];
+        return new String(nameArena, start, nameOffsets[index + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param index Position of repository in listing.
+     * @return Star count of repository.
+     */
+    public int getStars(int index) {
+        Objects.checkIndex(index, size());
+        return stars[index];
+    }
+
+    /**
+     * Read-only list view of this listing. Elements are created on access, so modifying them
+     * does not change the listing.
+     * @return List of repositories serializing to the same JSON as list of
+     * {@link mdudzisz.starcounter.model.GithubRepoModel}.
+     */
+    public List<GithubRepoModel> asList() {
+        return new ListView();
+    }
+
+    /**
+     * @return Page links rebuilt from stored Link header.
+     */
+    public List<Link> getPageLinks() {
+        List<Link> links = new LinkedList<>();
+        if (!linkHeader.isEmpty()) {
+            for (String singleLink : linkHeader.split(","))
+                links.add(Link.valueOf(singleLink));
+        }
+        return links;
+    }
+
+    /**
+     * @return Page equal to the one this listing was created from.
+     */
+    public GithubPageableRequestResult toResult() {
+        return new GithubPageableRequestResult(asList(), getPageLinks());
+    }
+
+    private final class ListView extends AbstractList<GithubRepoModel> implements RandomAccess {
+
+        @Override
+        public GithubRepoModel get(int index) {
+            return new GithubRepoModel(getName(index), getStars(index));
+        }
+
+        @Override
+        public int size() {
+            return CompactRepoListing.this.size();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package mdudzisz.starcounter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Thread-safe cache of values fetched from Github. Entries are fresh for time to live; after that they are
+ * kept as stale until stale time to live passes, so that they can still be served when Github cannot
+ * be asked. Entries above maximum size are evicted.
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+class ExpiringCache<K, V> {
+
+    private final long timeToLiveNanos;
+    private final Cache<K, Entry<V>> entries;
+
+    ExpiringCache(long maxSize, Duration timeToLive, Duration staleTimeToLive) {
+        if (staleTimeToLive.compareTo(timeToLive) < 0)
+            throw new IllegalArgumentException("Stale time to live must not be shorter than time to live.");
+
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleTimeToLive)
+                .build();
+    }
+
+    /**
+     * @param key Key of the value.
+     * @return Value put not longer than time to live ago, or empty.
+     */
+    Optional<V> get(K key) {
+        Entry<V> entry = entries.getIfPresent(key);
+        if (entry == null || System.nanoTime() - entry.createdAtNanos >= timeToLiveNanos)
+            return Optional.empty();
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * @param key Key of the value.
+     * @return Value put not longer than stale time to live ago, or empty.
+     */
+    Optional<V> getStale(K key) {
+        return Optional.ofNullable(entries.getIfPresent(key)).map(entry -> entry.value);
+    }
+
+    void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long createdAtNanos;
+
+        private Entry(V value, long createdAtNanos) {
+            this.value = value;
+            this.createdAtNanos = createdAtNanos;
+        }
+    }
+}
@@ -4,8 +4,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import mdudzisz.starcounter.model.CompactRepoListing;
 import mdudzisz.starcounter.model.GithubPageableRequestResult;
 import mdudzisz.starcounter.model.GithubRepoModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.hateoas.Link;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -17,7 +20,10 @@ import org.springframework.web.client.RestTemplate;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -26,12 +32,40 @@ import java.util.stream.Collectors;
 @Service
 public class GithubConnector {
 
-    private static final URL apiUrl = initializeGithubApiUrl();
+    private final URL apiUrl;
+
+    private static final Duration connectTimeout = Duration.ofSeconds(5);
+    private static final Duration readTimeout = Duration.ofSeconds(10);
 
     private final RestTemplate template;
 
-    public GithubConnector() {
-        template = new RestTemplate();
+    private final ExpiringCache<String, CompactRepoListing> reposCache;
+    private final ExpiringCache<String, Integer> starCountCache;
+
+    /**
+     * @param apiUrl Base url of Github API.
+     * @param cacheMaxSize Maximum number of entries in each of the caches of Github results.
+     * @param cacheTimeToLiveSeconds Time for which cached results are served instead of asking Github.
+     * @param cacheStaleTimeToLiveSeconds Time for which cached results are kept to be served when Github
+     *                                    cannot be asked because of overload.
+     */
+    public GithubConnector(
+            @Value("${starcounter.github.api-url:https://api.github.com/}") String apiUrl,
+            @Value("${starcounter.cache.max-size:10000}") long cacheMaxSize,
+            @Value("${starcounter.cache.time-to-live-seconds:60}") long cacheTimeToLiveSeconds,
+            @Value("${starcounter.cache.stale-time-to-live-seconds:3600}") long cacheStaleTimeToLiveSeconds) {
+        this.apiUrl = parseGithubApiUrl(apiUrl);
+
+        // bounded upstream calls, so that slow Github cannot hold request threads indefinitely
+        template = new RestTemplateBuilder()
+                .setConnectTimeout(connectTimeout)
+                .setReadTimeout(readTimeout)
+                .build();
+
+        Duration cacheTimeToLive = Duration.ofSeconds(cacheTimeToLiveSeconds);
+        Duration cacheStaleTimeToLive = Duration.ofSeconds(cacheStaleTimeToLiveSeconds);
+        reposCache = new ExpiringCache<>(cacheMaxSize, cacheTimeToLive, cacheStaleTimeToLive);
+        starCountCache = new ExpiringCache<>(cacheMaxSize, cacheTimeToLive, cacheStaleTimeToLive);
     }
 
     /**
@@ -54,36 +88,88 @@ public class GithubConnector {
         List<GithubRepoModel> reposInfos = new LinkedList<>(parseGithubRepoModels(response));
         List<Link> pagesLinks = getHeaderLinks(response);
 
-        return new GithubPageableRequestResult(reposInfos, pagesLinks);
+        GithubPageableRequestResult result = new GithubPageableRequestResult(reposInfos, pagesLinks);
+        reposCache.put(parseReposCacheKey(username, queryMap), CompactRepoListing.of(result));
+        return result;
+    }
+
+    /**
+     * Function returning page of data recently fetched from Github, without contacting Github.
+     * @param username Github user name whose repositories should be listed.
+     * @param queryMap Map of allowed query parameters with their values as String.
+     * @return Page previously returned by {@link #getReposNamesAndStars(String, Map)} for the same arguments,
+     * or empty if there is no fresh one.
+     */
+    public Optional<GithubPageableRequestResult> getCachedReposNamesAndStars(String username,
+                                                                           Map<String, String> queryMap) {
+        return reposCache.get(parseReposCacheKey(username, queryMap)).map(CompactRepoListing::toResult);
+    }
+
+    /**
+     * Function returning page of data fetched from Github, possibly outdated, without contacting Github.
+     * Meant to be served when Github cannot be asked.
+     * @param username Github user name whose repositories should be listed.
+     * @param queryMap Map of allowed query parameters with their values as String.
+     * @return Page previously returned by {@link #getReposNamesAndStars(String, Map)} for the same arguments,
+     * or empty if it is not kept anymore.
+     */
+    public Optional<GithubPageableRequestResult> getStaleReposNamesAndStars(String username,
+                                                                          Map<String, String> queryMap) {
+        return reposCache.getStale(parseReposCacheKey(username, queryMap)).map(CompactRepoListing::toResult);
     }
 
     /**
      *
      * @param username Github user name whose stars should be counted.
+     * @param pageFetchListener Notified with duration in nanoseconds of each page fetched from Github.
      * @return Number of user's stars.
      * @throws HttpClientErrorException When unable to retrieve data from Github.
      * @throws JsonProcessingException When there is an internal error parsing Github response.
      */
-    public int getUserStarCount(String username) throws HttpClientErrorException, JsonProcessingException {
+    public int getUserStarCount(String username, LongConsumer pageFetchListener)
+            throws HttpClientErrorException, JsonProcessingException {
 
         int starCount = 0;
 
         ResponseEntity<String> response;
 
-        response = fetchUserReposDataWithUsername(username);
+        response = fetchTimed(() -> fetchUserReposDataWithUsername(username), pageFetchListener);
         starCount += countStarsOnPage(response);
         List<Link> pageLinks = getHeaderLinks(response);
 
         while (linksContainNext(pageLinks)) {
             Optional<String> nextPageUrlOptional = getNextPageUrl(pageLinks);
-            response = fetchUserReposDataWithUrl(nextPageUrlOptional.orElseThrow());
+            response = fetchTimed(() -> fetchUserReposDataWithUrl(nextPageUrlOptional.orElseThrow()),
+                    pageFetchListener);
             starCount += countStarsOnPage(response);
             pageLinks = getHeaderLinks(response);
         }
 
+        starCountCache.put(username, starCount);
         return starCount;
     }
 
+    /**
+     * Function returning star count recently counted, without contacting Github.
+     * @param username Github user name whose stars should be counted.
+     * @return Number of user's stars previously returned by {@link #getUserStarCount(String, LongConsumer)},
+     * or empty if there is no fresh one.
+     */
+    public Optional<Integer> getCachedUserStarCount(String username) {
+        return starCountCache.get(username);
+    }
+
+    /**
+     * Function returning star count counted earlier, possibly outdated, without contacting Github.
+     * Meant to be served when Github cannot be asked.
+     * @param username Github user name whose stars should be counted.
+     * @return Number of user's stars previously returned by {@link #getUserStarCount(String, LongConsumer)},
+     * or empty if it is not kept anymore.
+     */
+    public Optional<Integer> getStaleUserStarCount(String username) {
+        return starCountCache.getStale(username);
+    }
+
     private String parseUrl(String username, Map<String, String> queryMap) {
         final String urlPrefix = "users/";
         final String urlSuffix = "/repos";
@@ -93,6 +179,11 @@ public class GithubConnector {
         return apiUrl + urlPrefix + username + urlSuffix + "?" + queryString;
     }
 
+    private String parseReposCacheKey(String username, Map<String, String> queryMap) {
+        // sorted, so that the same query params in different order share a cache entry
+        return username + "?" + parseQueryString(new TreeMap<>(queryMap));
+    }
+
     private String parseQueryString(Map<String, String> queryMap) {
         List<String> keyValuePairs = queryMap.entrySet().stream().map(el -> el.getKey() + "=" + el.getValue())
                 .collect(Collectors.toList());
@@ -115,6 +206,13 @@ public class GithubConnector {
         return template.getForEntity(url, String.class);
     }
 
+    private ResponseEntity<String> fetchTimed(Supplier<ResponseEntity<String>> fetch, LongConsumer fetchListener) {
+        long start = System.nanoTime();
+        ResponseEntity<String> response = fetch.get();
+        fetchListener.accept(System.nanoTime() - start);
+        return response;
+    }
+
     private boolean linksContainNext(List<Link> links) {
         return links.stream().anyMatch(link -> link.getRel().value().equals("next"));
     }
@@ -167,12 +265,11 @@ public class GithubConnector {
         return starsOnPage;
     }
 
-    private static URL initializeGithubApiUrl() {
+    private static URL parseGithubApiUrl(String apiUrl) {
         try {
-            return new URL("https://api.github.com/");
+            return new URL(apiUrl);
         } catch (MalformedURLException e) {
-            e.printStackTrace();
-            throw new AssertionError();
+            throw new IllegalArgumentException("Invalid Github API url: " + apiUrl, e);
         }
     }
 }
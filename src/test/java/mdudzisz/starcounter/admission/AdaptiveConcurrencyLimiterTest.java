@@ -0,0 +1,116 @@
+package mdudzisz.starcounter.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long fastNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long slowNanos = TimeUnit.MILLISECONDS.toNanos(2000);
+
+    private static AdaptiveConcurrencyLimiter createLimiter() {
+        return new AdaptiveConcurrencyLimiter(10, 2, 20, 1000, 0.5, 1);
+    }
+
+    @Test
+    void tryAcquire_RejectsOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new LinkedList<>();
+        for (int i = 0; i < limiter.getLimit(); i++)
+            permits.add(limiter.tryAcquire().orElseThrow());
+
+        assertTrue(limiter.tryAcquire().isEmpty(), "Request over limit should be rejected.");
+
+        permits.get(0).ignore();
+        assertTrue(limiter.tryAcquire().isPresent(), "Finished permit should free capacity.");
+    }
+
+    @Test
+    void permit_FinishingTwiceHasNoEffect() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire().orElseThrow();
+        permit.release();
+        permit.drop();
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(10, limiter.getLimit(), "Only the first finish should adjust the limit.");
+    }
+
+    @Test
+    void permit_RecordedCallsReplaceRequestLatency() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, 1, 0.5, 1);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire().orElseThrow();
+        for (int i = 0; i < 10; i++)
+            permit.recordCall(0);
+        Thread.sleep(5); // whole request slower than threshold, each of its calls faster
+        permit.release();
+
+        assertEquals(10, limiter.getLimit(), "Only fast calls should be sampled, not whole request.");
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void onSample_SlowUpstreamShrinksLimitToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+
+        limiter.onSample(slowNanos, false);
+        assertEquals(5, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++)
+            limiter.onSample(slowNanos, false);
+        assertEquals(2, limiter.getLimit(), "Limit should not drop below minimum.");
+    }
+
+    @Test
+    void onSample_DroppedShrinksLimit() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+
+        limiter.onSample(fastNanos, true);
+
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void onSample_FastUpstreamGrowsLimitToMaximum() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+
+        // additive increase: about one per full window of fast samples
+        for (int i = 0; i < 11; i++)
+            limiter.onSample(fastNanos, false);
+        assertEquals(11, limiter.getLimit());
+
+        for (int i = 0; i < 1000; i++)
+            limiter.onSample(fastNanos, false);
+        assertEquals(20, limiter.getLimit(), "Limit should not grow above maximum.");
+    }
+
+    @Test
+    void tryAcquire_ShedsLoadAfterUpstreamSlowsDown() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+
+        for (int i = 0; i < 3; i++)
+            limiter.onSample(slowNanos, false);
+
+        int admitted = 0;
+        Optional<AdaptiveConcurrencyLimiter.Permit> permit;
+        while ((permit = limiter.tryAcquire()).isPresent() && admitted < 100)
+            admitted++;
+
+        assertEquals(2, admitted, "Only the reduced limit of requests should be admitted.");
+    }
+
+    @Test
+    void constructor_InvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(1, 2, 20, 1000, 0.5, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(10, 2, 20, 1000, 1.0, 1));
+    }
+}
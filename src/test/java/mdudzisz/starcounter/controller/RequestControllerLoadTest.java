@@ -0,0 +1,153 @@
+package mdudzisz.starcounter.controller;
+
+import com.sun.net.httpserver.HttpServer;
+import mdudzisz.starcounter.admission.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of admission control against a local Github stub answering slower than latency threshold.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "starcounter.admission.list.initial-limit=4",
+        "starcounter.admission.list.min-limit=1",
+        "starcounter.admission.list.max-limit=4",
+        "starcounter.admission.list.latency-threshold-ms=200",
+        "starcounter.admission.list.retry-after-seconds=1"})
+class RequestControllerLoadTest {
+
+    private static final long stubDelayMillis = 500;
+    private static final int requestCount = 30;
+
+    private static final AtomicInteger stubInFlight = new AtomicInteger();
+    private static final AtomicInteger stubMaxInFlight = new AtomicInteger();
+
+    private static HttpServer githubStub;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    @Qualifier("listLimiter")
+    private AdaptiveConcurrencyLimiter listLimiter;
+
+    @BeforeAll
+    static void startGithubStub() throws IOException {
+        githubStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        githubStub.setExecutor(Executors.newCachedThreadPool());
+        githubStub.createContext("/users/", exchange -> {
+            stubMaxInFlight.accumulateAndGet(stubInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(stubDelayMillis);
+                byte[] body = "[{\"name\":\"repo\",\"stargazers_count\":1}]".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "application/json");
+                exchange.sendResponseHeaders(HttpStatus.OK.value(), body.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stubInFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        githubStub.start();
+    }
+
+    @AfterAll
+    static void stopGithubStub() {
+        githubStub.stop(0);
+    }
+
+    @DynamicPropertySource
+    static void githubStubProperties(DynamicPropertyRegistry registry) {
+        registry.add("starcounter.github.api-url",
+                () -> "http://localhost:" + githubStub.getAddress().getPort() + "/");
+    }
+
+    @Test
+    void listUserRepos_SlowGithubBoundedLatency() throws Exception {
+        // warm up application without reaching Github
+        restTemplate.getForEntity("/list/someone?unsupported=1", String.class);
+
+        ExecutorService clients = Executors.newFixedThreadPool(requestCount);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<TimedResponse>> futures = new LinkedList<>();
+        for (int i = 0; i < requestCount; i++) {
+            String username = "user" + i; // distinct users, so that no answer comes from cache
+            futures.add(clients.submit(() -> {
+                startSignal.await();
+                long start = System.nanoTime();
+                ResponseEntity<String> response = restTemplate.getForEntity("/list/" + username, String.class);
+                return new TimedResponse(response, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }));
+        }
+        startSignal.countDown();
+
+        List<TimedResponse> admitted = new LinkedList<>();
+        List<TimedResponse> rejected = new LinkedList<>();
+        for (Future<TimedResponse> future : futures) {
+            TimedResponse timedResponse = future.get(30, TimeUnit.SECONDS);
+            if (timedResponse.response.getStatusCode() == HttpStatus.OK)
+                admitted.add(timedResponse);
+            else
+                rejected.add(timedResponse);
+        }
+        clients.shutdown();
+
+        System.out.printf("Github stub delay %d ms: %d admitted (max %d ms), %d rejected (max %d ms), "
+                        + "max concurrent Github calls %d%n", stubDelayMillis,
+                admitted.size(), admitted.stream().mapToLong(timedResponse -> timedResponse.millis).max().orElse(0),
+                rejected.size(), rejected.stream().mapToLong(timedResponse -> timedResponse.millis).max().orElse(0),
+                stubMaxInFlight.get());
+
+        assertTrue(stubMaxInFlight.get() <= 4, "Github should never get more concurrent calls than max limit.");
+        assertFalse(admitted.isEmpty(), "Some requests should be admitted.");
+        assertFalse(rejected.isEmpty(), "Requests over capacity should be rejected.");
+
+        for (TimedResponse timedResponse : admitted)
+            assertTrue(timedResponse.millis < stubDelayMillis + 1500,
+                    "Admitted request latency should stay bounded, was " + timedResponse.millis + " ms.");
+
+        for (TimedResponse timedResponse : rejected) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, timedResponse.response.getStatusCode());
+            assertEquals("1", timedResponse.response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            assertTrue(timedResponse.millis < stubDelayMillis,
+                    "Rejected request should not wait for Github, took " + timedResponse.millis + " ms.");
+        }
+
+        assertTrue(listLimiter.getLimit() < 4, "Calls slower than threshold should lower the limit.");
+    }
+
+    private static class TimedResponse {
+        private final ResponseEntity<String> response;
+        private final long millis;
+
+        private TimedResponse(ResponseEntity<String> response, long millis) {
+            this.response = response;
+            this.millis = millis;
+        }
+    }
+}
@@ -3,14 +3,18 @@ package mdudzisz.starcounter.controller;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import mdudzisz.starcounter.admission.AdaptiveConcurrencyLimiter;
+import mdudzisz.starcounter.admission.AdmissionConfig;
 import mdudzisz.starcounter.model.GithubPageableRequestResult;
 import mdudzisz.starcounter.model.GithubRepoModel;
 import mdudzisz.starcounter.service.GithubConnector;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.hateoas.Link;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -18,17 +22,23 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(RequestController.class)
+@Import(AdmissionConfig.class)
 class RequestControllerTest {
 
     @Autowired
@@ -37,6 +47,14 @@ class RequestControllerTest {
     @MockBean
     private GithubConnector githubConnector;
 
+    @Autowired
+    @Qualifier("listLimiter")
+    private AdaptiveConcurrencyLimiter listLimiter;
+
+    @Autowired
+    @Qualifier("countLimiter")
+    private AdaptiveConcurrencyLimiter countLimiter;
+
     static List<GithubRepoModel> repositories;
 
     static {
@@ -137,7 +155,7 @@ class RequestControllerTest {
         String username = "someone";
         int starCount = 3;
 
-        given(githubConnector.getUserStarCount(username)).willReturn(starCount);
+        given(githubConnector.getUserStarCount(eq(username), any())).willReturn(starCount);
 
         // perform tested method
         MockHttpServletResponse controllerResponse = client.perform(get("/count/" + username))
@@ -149,6 +167,235 @@ class RequestControllerTest {
         assertEquals(resultBody.findValue("star_count").asInt(), starCount);
     }
 
+    @Test
+    void listUserRepos_OverCapacity() throws Exception {
+        String username = "someone";
+        GithubPageableRequestResult serviceResult = new GithubPageableRequestResult(repositories, List.of());
+
+        given(githubConnector.getReposNamesAndStars(username, Map.of())).willReturn(serviceResult);
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = exhaust(listLimiter);
+        try {
+            // perform tested method
+            MockHttpServletResponse controllerResponse = client.perform(get("/list/" + username))
+                    .andReturn().getResponse();
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), controllerResponse.getStatus());
+            assertEquals(String.valueOf(listLimiter.getRetryAfterSeconds()),
+                    controllerResponse.getHeader(HttpHeaders.RETRY_AFTER),
+                    "Rejected response should advise client when to retry.");
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    @Test
+    void listUserRepos_OverCapacityCached() throws Exception {
+        String username = "someone";
+        GithubPageableRequestResult serviceResult = new GithubPageableRequestResult(repositories, List.of());
+
+        given(githubConnector.getCachedReposNamesAndStars(username, Map.of())).willReturn(Optional.of(serviceResult));
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = exhaust(listLimiter);
+        try {
+            // perform tested method
+            MockHttpServletResponse controllerResponse = client.perform(get("/list/" + username))
+                    .andReturn().getResponse();
+
+            assertEquals(HttpStatus.OK.value(), controllerResponse.getStatus(),
+                    "Cached answer should be served regardless of capacity.");
+            List<GithubRepoModel> responseParsed = new ObjectMapper().readValue(
+                    controllerResponse.getContentAsString(), new TypeReference<>() {
+                    });
+            assertEquals(repositories, responseParsed);
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    @Test
+    void listUserRepos_GithubServerErrorLowersLimit() throws Exception {
+        String username = "someone";
+
+        given(githubConnector.getReposNamesAndStars(username, Map.of())).willThrow(
+                HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", new HttpHeaders(), null, null));
+
+        int limitBefore = listLimiter.getLimit();
+
+        // perform tested method
+        client.perform(get("/list/" + username)).andReturn();
+
+        assertTrue(listLimiter.getLimit() < limitBefore, "Github server error should lower the limit.");
+        assertEquals(0, listLimiter.getInFlight());
+    }
+
+    @Test
+    void listUserRepos_GithubTimeoutLowersLimit() throws Exception {
+        String username = "someone";
+
+        given(githubConnector.getReposNamesAndStars(username, Map.of())).willThrow(
+                new ResourceAccessException("Read timed out"));
+
+        int limitBefore = listLimiter.getLimit();
+
+        // perform tested method
+        client.perform(get("/list/" + username)).andReturn();
+
+        assertTrue(listLimiter.getLimit() < limitBefore, "Github timeout should lower the limit.");
+        assertEquals(0, listLimiter.getInFlight());
+    }
+
+    @Test
+    void countUserStars_OverCapacity() throws Exception {
+        String username = "someone";
+
+        given(githubConnector.getUserStarCount(eq(username), any())).willReturn(3);
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = exhaust(countLimiter);
+        try {
+            // perform tested method
+            MockHttpServletResponse controllerResponse = client.perform(get("/count/" + username))
+                    .andReturn().getResponse();
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), controllerResponse.getStatus());
+            assertEquals(String.valueOf(countLimiter.getRetryAfterSeconds()),
+                    controllerResponse.getHeader(HttpHeaders.RETRY_AFTER),
+                    "Rejected response should advise client when to retry.");
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    @Test
+    void countUserStars_OverCapacityCached() throws Exception {
+        String username = "someone";
+        int starCount = 3;
+
+        given(githubConnector.getCachedUserStarCount(username)).willReturn(Optional.of(starCount));
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = exhaust(countLimiter);
+        try {
+            // perform tested method
+            MockHttpServletResponse controllerResponse = client.perform(get("/count/" + username))
+                    .andReturn().getResponse();
+
+            assertEquals(HttpStatus.OK.value(), controllerResponse.getStatus(),
+                    "Cached answer should be served regardless of capacity.");
+            JsonNode resultBody = new ObjectMapper().readTree(controllerResponse.getContentAsString());
+            assertEquals(starCount, resultBody.findValue("star_count").asInt());
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    @Test
+    void countUserStars_OverCapacityStale() throws Exception {
+        String username = "someone";
+        int starCount = 3;
+
+        given(githubConnector.getStaleUserStarCount(username)).willReturn(Optional.of(starCount));
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = exhaust(countLimiter);
+        try {
+            // perform tested method
+            MockHttpServletResponse controllerResponse = client.perform(get("/count/" + username))
+                    .andReturn().getResponse();
+
+            assertEquals(HttpStatus.OK.value(), controllerResponse.getStatus(),
+                    "Stale answer should be served instead of rejecting request.");
+            JsonNode resultBody = new ObjectMapper().readTree(controllerResponse.getContentAsString());
+            assertEquals(starCount, resultBody.findValue("star_count").asInt());
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    @Test
+    void listUserRepos_OverCapacityStale() throws Exception {
+        String username = "someone";
+        GithubPageableRequestResult serviceResult = new GithubPageableRequestResult(repositories, List.of());
+
+        given(githubConnector.getStaleReposNamesAndStars(username, Map.of())).willReturn(Optional.of(serviceResult));
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = exhaust(listLimiter);
+        try {
+            // perform tested method
+            MockHttpServletResponse controllerResponse = client.perform(get("/list/" + username))
+                    .andReturn().getResponse();
+
+            assertEquals(HttpStatus.OK.value(), controllerResponse.getStatus(),
+                    "Stale answer should be served instead of rejecting request.");
+            List<GithubRepoModel> responseParsed = new ObjectMapper().readValue(
+                    controllerResponse.getContentAsString(), new TypeReference<>() {
+                    });
+            assertEquals(repositories, responseParsed);
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    @Test
+    void listUserRepos_GithubTooManyRequestsLowersLimit() throws Exception {
+        String username = "someone";
+
+        given(githubConnector.getReposNamesAndStars(username, Map.of())).willThrow(
+                HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+                        new HttpHeaders(), null, null));
+
+        int limitBefore = listLimiter.getLimit();
+
+        // perform tested method
+        MockHttpServletResponse controllerResponse = client.perform(get("/list/" + username))
+                .andReturn().getResponse();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), controllerResponse.getStatus());
+        assertTrue(listLimiter.getLimit() < limitBefore, "Github rate limiting should lower the limit.");
+    }
+
+    @Test
+    void countUserStars_GithubRateLimitExhaustedLowersLimit() throws Exception {
+        String username = "someone";
+        HttpHeaders githubHeaders = new HttpHeaders();
+        githubHeaders.set("X-RateLimit-Remaining", "0");
+
+        given(githubConnector.getUserStarCount(eq(username), any())).willThrow(
+                HttpClientErrorException.create(HttpStatus.FORBIDDEN, "Forbidden", githubHeaders, null, null));
+
+        int limitBefore = countLimiter.getLimit();
+
+        // perform tested method
+        MockHttpServletResponse controllerResponse = client.perform(get("/count/" + username))
+                .andReturn().getResponse();
+
+        assertEquals(HttpStatus.FORBIDDEN.value(), controllerResponse.getStatus());
+        assertTrue(countLimiter.getLimit() < limitBefore, "Exhausted Github rate limit should lower the limit.");
+    }
+
+    @Test
+    void countUserStars_UnknownUserKeepsLimit() throws Exception {
+        String username = "nobody";
+
+        given(githubConnector.getUserStarCount(eq(username), any())).willThrow(
+                HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), null, null));
+
+        int limitBefore = countLimiter.getLimit();
+
+        // perform tested method
+        MockHttpServletResponse controllerResponse = client.perform(get("/count/" + username))
+                .andReturn().getResponse();
+
+        assertEquals(HttpStatus.NOT_FOUND.value(), controllerResponse.getStatus());
+        assertEquals(limitBefore, countLimiter.getLimit(), "Unknown user should not change the limit.");
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> exhaust(AdaptiveConcurrencyLimiter limiter) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new LinkedList<>();
+        Optional<AdaptiveConcurrencyLimiter.Permit> permit;
+        while ((permit = limiter.tryAcquire()).isPresent())
+            permits.add(permit.get());
+        return permits;
+    }
+
     private List<Link> getLinksFromHeader(MockHttpServletResponse controllerResponse) {
         List<String> plainStringLinks = controllerResponse.getHeaders(HttpHeaders.LINK);
         List<Link> links = new LinkedList<>();
@@ -0,0 +1,59 @@
+package mdudzisz.starcounter.model;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.hateoas.Link;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Memory benchmark comparing retained heap of cached pages of 1M repositories: pages as returned
+ * by GithubConnector (LinkedList of models and Link objects) against compact listings.
+ * Excluded from regular build, run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class CompactRepoListingFootprintBenchmark {
+
+    private static final int repoCount = 1_000_000;
+    private static final int reposPerPage = 30; // Github default page size
+
+    @Test
+    void footprint_PerMillionRepos() {
+        List<GithubPageableRequestResult> pages = new ArrayList<>();
+        List<CompactRepoListing> listings = new ArrayList<>();
+
+        for (int pageNumber = 0; pageNumber * reposPerPage < repoCount; pageNumber++) {
+            GithubPageableRequestResult page = createPage(pageNumber);
+            pages.add(page);
+            listings.add(CompactRepoListing.of(page));
+        }
+
+        long pagesBytes = GraphLayout.parseInstance(pages).totalSize();
+        long listingsBytes = GraphLayout.parseInstance(listings).totalSize();
+
+        System.out.printf("Footprint per 1M repos in pages of %d: GithubPageableRequestResult %d MB, "
+                + "CompactRepoListing %d MB%n", reposPerPage, pagesBytes >> 20, listingsBytes >> 20);
+
+        assertTrue(listingsBytes < pagesBytes, "Compact listings should take less heap than pages of models.");
+    }
+
+    private static GithubPageableRequestResult createPage(int pageNumber) {
+        List<GithubRepoModel> repos = new LinkedList<>();
+        for (int i = 0; i < reposPerPage; i++)
+            repos.add(new GithubRepoModel("repository-" + (pageNumber * reposPerPage + i), i));
+
+        String pageUrl = "https://api.github.com/user/49537887/repos?per_page=" + reposPerPage + "&page=";
+        List<Link> links = new LinkedList<>(List.of(
+                Link.of(pageUrl + pageNumber, "prev"),
+                Link.of(pageUrl + (pageNumber + 2), "next"),
+                Link.of(pageUrl + 33334, "last"),
+                Link.of(pageUrl + 1, "first")));
+
+        return new GithubPageableRequestResult(repos, links);
+    }
+}
@@ -0,0 +1,57 @@
+package mdudzisz.starcounter.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.Link;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRepoListingTest {
+
+    static List<GithubRepoModel> repositories = List.of(
+            new GithubRepoModel("repo1", 1),
+            new GithubRepoModel("", 0),
+            new GithubRepoModel("zażółć-gęślą-jaźń", 42));
+
+    static List<Link> pageLinks = List.of(
+            Link.of("https://api.github.com/user/49537887/repos?per_page=3&page=2", "prev"),
+            Link.of("https://api.github.com/user/49537887/repos?per_page=3&page=4", "next"));
+
+    @Test
+    void toResult_SamePage() {
+        GithubPageableRequestResult page = new GithubPageableRequestResult(new LinkedList<>(repositories), pageLinks);
+
+        CompactRepoListing listing = CompactRepoListing.of(page);
+
+        assertEquals(repositories.size(), listing.size());
+        assertEquals(page, listing.toResult(),
+                "Unpacked page should contain the same repositories and links in the same order.");
+    }
+
+    @Test
+    void toResult_NoPageLinks() {
+        GithubPageableRequestResult page = new GithubPageableRequestResult(repositories, List.of());
+
+        assertTrue(CompactRepoListing.of(page).getPageLinks().isEmpty());
+    }
+
+    @Test
+    void asList_SameJson() throws Exception {
+        ObjectMapper jsonMapper = new ObjectMapper();
+        CompactRepoListing listing = CompactRepoListing.of(new GithubPageableRequestResult(repositories, pageLinks));
+
+        assertEquals(jsonMapper.writeValueAsString(repositories), jsonMapper.writeValueAsString(listing.asList()),
+                "List view should serialize to the same JSON as list of models.");
+    }
+
+    @Test
+    void getName_IndexOutOfBounds() {
+        CompactRepoListing listing = CompactRepoListing.of(new GithubPageableRequestResult(repositories, pageLinks));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> listing.getName(repositories.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> listing.getStars(-1));
+    }
+}
@@ -0,0 +1,39 @@
+package mdudzisz.starcounter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCacheTest {
+
+    @Test
+    void get_FreshEntry() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1));
+
+        cache.put("someone", 3);
+
+        assertEquals(Optional.of(3), cache.get("someone"));
+        assertEquals(Optional.of(3), cache.getStale("someone"));
+        assertTrue(cache.get("nobody").isEmpty());
+    }
+
+    @Test
+    void get_StaleEntryOnlyServedAsStale() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, Duration.ZERO, Duration.ofHours(1));
+
+        cache.put("someone", 3);
+
+        assertTrue(cache.get("someone").isEmpty(), "Entry older than time to live should not be fresh.");
+        assertEquals(Optional.of(3), cache.getStale("someone"),
+                "Entry younger than stale time to live should still be kept.");
+    }
+
+    @Test
+    void constructor_StaleTimeToLiveShorterThanTimeToLive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExpiringCache<String, Integer>(10, Duration.ofHours(1), Duration.ofMinutes(1)));
+    }
+}